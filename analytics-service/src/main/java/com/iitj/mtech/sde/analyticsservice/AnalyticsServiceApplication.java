@@ -1,5 +1,7 @@
 package com.iitj.mtech.sde.analyticsservice;
 
+import com.iitj.mtech.sde.analyticsservice.deadline.DeadlineAwareRequestFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
@@ -17,8 +19,12 @@ public class AnalyticsServiceApplication {
 		SpringApplication.run(AnalyticsServiceApplication.class, args);
 	}
 
+	// LLM calls use the configured timeouts, capped by the remaining request budget
 	@Bean
-	public RestTemplate restTemplate() {
-		return new RestTemplate();
+	public RestTemplate restTemplate(
+			@Value("${http.client.connect-timeout:3000}") int connectTimeout,
+			@Value("${http.client.read-timeout:8000}") int readTimeout
+	) {
+		return new RestTemplate(new DeadlineAwareRequestFactory(connectTimeout, readTimeout));
 	}
 }
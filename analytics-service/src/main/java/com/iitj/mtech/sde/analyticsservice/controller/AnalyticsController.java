@@ -1,16 +1,26 @@
 package com.iitj.mtech.sde.analyticsservice.controller;
 
+import com.iitj.mtech.sde.analyticsservice.deadline.DeadlineExceededException;
+import com.iitj.mtech.sde.analyticsservice.deadline.DeadlineMetrics;
+import com.iitj.mtech.sde.analyticsservice.deadline.RequestDeadline;
+import com.iitj.mtech.sde.analyticsservice.scheduler.AnalysisScheduler;
+import com.iitj.mtech.sde.analyticsservice.scheduler.Priority;
 import com.iitj.mtech.sde.analyticsservice.service.AnalyticsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Controller to handle analytics requests
@@ -23,19 +33,77 @@ public class AnalyticsController {
     @Autowired
     private AnalyticsService analyticsService;
 
+    @Autowired
+    private AnalysisScheduler analysisScheduler;
+
+    @Autowired
+    private DeadlineMetrics deadlineMetrics;
+
+    /**
+     * Queues the file on the fair scheduler instead of running the LLM call on the servlet thread.
+     * Jobs are keyed on the uploader set by the gateway; large files default to the batch class.
+     * The job is cancelled if the request deadline passes before it runs. A caller that closes the connection
+     * early is generally not noticed until then, since the container only sees it on the next write.
+     */
     @PostMapping("/analyze")
-    public ResponseEntity<String> analyzeFeedback(@RequestParam("file") MultipartFile file) {
+    public DeferredResult<ResponseEntity<String>> analyzeFeedback(
+            @RequestParam("file") MultipartFile file,
+            @RequestHeader(value = AnalysisScheduler.TENANT_HEADER, required = false) String tenantHeader,
+            @RequestHeader(value = AnalysisScheduler.PRIORITY_HEADER, required = false) String priorityHeader) {
         logger.info("Received file for analysis: {}", file.getOriginalFilename());
+        String csvData;
         try {
-            String csvData = new String(file.getBytes(), StandardCharsets.UTF_8);
-            String result = analyticsService.getAnalyticsFromLlm(csvData);
-            return ResponseEntity.ok(result);
+            csvData = new String(file.getBytes(), StandardCharsets.UTF_8);
         } catch (IOException e) {
             logger.error("Error reading file bytes", e);
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Error reading file", e);
-        } catch (Exception e) {
-            logger.error("Error during LLM analysis", e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error during analysis", e);
         }
+
+        String tenant = AnalysisScheduler.resolveTenant(tenantHeader);
+        Priority priority = analysisScheduler.resolvePriority(priorityHeader, file.getSize());
+        logger.info("Queueing {} analysis for tenant {}", priority, tenant);
+
+        Long deadlineNanos = RequestDeadline.current();
+        CompletableFuture<String> job = analysisScheduler.submit(tenant, priority, file.getSize(), deadlineNanos,
+                () -> analyticsService.getAnalyticsFromLlm(csvData));
+
+        DeferredResult<ResponseEntity<String>> result = deadlineNanos != null
+                ? new DeferredResult<>(Math.max(1, RequestDeadline.remainingMillis()))
+                : new DeferredResult<>();
+        result.onTimeout(() -> {
+            job.cancel(false);
+            result.setErrorResult(new DeadlineExceededException("Analysis did not finish within the request deadline"));
+        });
+        result.onError(t -> {
+            logger.warn("Async request failed, cancelling {} analysis for tenant {}", priority, tenant);
+            job.cancel(false);
+        });
+        job.whenComplete((value, ex) -> {
+            if (ex == null) {
+                result.setResult(ResponseEntity.ok(value));
+                return;
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof CancellationException) {
+                return; // the timeout/error callback already answered, or nobody is listening
+            }
+            if (cause instanceof ResponseStatusException) {
+                result.setErrorResult(cause);
+                return;
+            }
+            logger.error("Error during LLM analysis", cause);
+            result.setErrorResult(new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error during analysis", cause));
+        });
+        return result;
+    }
+
+    @GetMapping("/analyze/queue-stats")
+    public Map<String, Object> queueStats() {
+        return analysisScheduler.stats();
+    }
+
+    @GetMapping("/analyze/deadline-stats")
+    public Map<String, Object> deadlineStats() {
+        return deadlineMetrics.snapshot();
     }
 }
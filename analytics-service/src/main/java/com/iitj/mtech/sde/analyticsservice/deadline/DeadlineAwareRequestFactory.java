@@ -0,0 +1,29 @@
+package com.iitj.mtech.sde.analyticsservice.deadline;
+
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * Caps the LLM call's connect/read timeouts at the remaining budget of the job being run.
+ */
+public class DeadlineAwareRequestFactory extends SimpleClientHttpRequestFactory {
+
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+
+    public DeadlineAwareRequestFactory(int connectTimeoutMs, int readTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    @Override
+    protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+        super.prepareConnection(connection, httpMethod);
+        // HttpURLConnection treats 0 as infinite
+        long remaining = Math.max(1, RequestDeadline.remainingMillis());
+        connection.setConnectTimeout((int) Math.min(connectTimeoutMs, remaining));
+        connection.setReadTimeout((int) Math.min(readTimeoutMs, remaining));
+    }
+}
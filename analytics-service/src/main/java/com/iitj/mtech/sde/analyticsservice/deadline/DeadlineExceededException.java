@@ -0,0 +1,14 @@
+package com.iitj.mtech.sde.analyticsservice.deadline;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Raised when a request or queued job runs out of budget; answered with 504.
+ */
+public class DeadlineExceededException extends ResponseStatusException {
+
+    public DeadlineExceededException(String reason) {
+        super(HttpStatus.GATEWAY_TIMEOUT, reason);
+    }
+}
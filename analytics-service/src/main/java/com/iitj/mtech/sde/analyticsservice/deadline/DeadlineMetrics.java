@@ -0,0 +1,49 @@
+package com.iitj.mtech.sde.analyticsservice.deadline;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deadline counters for this service, served at /analyze/deadline-stats.
+ */
+@Component
+public class DeadlineMetrics {
+
+    private final AtomicLong expiredOnArrival = new AtomicLong();
+    private final AtomicLong callsSkipped = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong completedAfterDeadline = new AtomicLong();
+    private final AtomicLong wastedMillis = new AtomicLong();
+
+    public void expiredOnArrival() {
+        expiredOnArrival.incrementAndGet();
+    }
+
+    public void callSkipped() {
+        callsSkipped.incrementAndGet();
+    }
+
+    // Queued jobs dropped because the client went away or the request timed out
+    public void cancelled() {
+        cancelled.incrementAndGet();
+    }
+
+    // overrunMillis is how far past its deadline the job finished
+    public void completedAfterDeadline(long overrunMillis) {
+        completedAfterDeadline.incrementAndGet();
+        wastedMillis.addAndGet(Math.max(0, overrunMillis));
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("expiredOnArrival", expiredOnArrival.get());
+        out.put("callsSkipped", callsSkipped.get());
+        out.put("cancelled", cancelled.get());
+        out.put("completedAfterDeadline", completedAfterDeadline.get());
+        out.put("wastedMillis", wastedMillis.get());
+        return out;
+    }
+}
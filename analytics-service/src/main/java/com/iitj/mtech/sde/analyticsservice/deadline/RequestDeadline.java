@@ -0,0 +1,42 @@
+package com.iitj.mtech.sde.analyticsservice.deadline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline of the work on the current thread: set by DeadlineFilter on request threads and by
+ * analysis workers from the job's deadline before calling the LLM.
+ */
+public final class RequestDeadline {
+
+    public static final String HEADER = "X-Request-Budget-Ms";
+
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void set(long deadlineNanos) {
+        DEADLINE_NANOS.set(deadlineNanos);
+    }
+
+    public static void clear() {
+        DEADLINE_NANOS.remove();
+    }
+
+    // Deadline as a System.nanoTime() value, or null when the request carries none
+    public static Long current() {
+        return DEADLINE_NANOS.get();
+    }
+
+    public static long remainingMillis() {
+        Long deadline = DEADLINE_NANOS.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    public static boolean isExpired() {
+        return remainingMillis() <= 0;
+    }
+}
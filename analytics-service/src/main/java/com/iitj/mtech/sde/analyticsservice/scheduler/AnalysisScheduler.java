@@ -0,0 +1,458 @@
+package com.iitj.mtech.sde.analyticsservice.scheduler;
+
+import com.iitj.mtech.sde.analyticsservice.deadline.DeadlineExceededException;
+import com.iitj.mtech.sde.analyticsservice.deadline.DeadlineMetrics;
+import com.iitj.mtech.sde.analyticsservice.deadline.RequestDeadline;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Fair, priority-aware scheduler that fronts LLM execution.
+ *
+ * Jobs are queued per tenant (the uploader, as set by the gateway) and per priority class. Within a class,
+ * tenants are served by self-clocked weighted fair queuing, so one tenant bulk-uploading
+ * cannot starve the others. INTERACTIVE jobs are always dispatched before BATCH jobs, and
+ * BATCH jobs may only occupy a bounded number of workers so interactive work always finds
+ * a free worker. Jobs that wait longer than their class's queue deadline are shed with 503; jobs
+ * still queued once less than min-execution-budget (at most half their original budget) is left
+ * before the request's own deadline are shed with 504. Jobs whose caller has gone away are dropped
+ * before they run.
+ */
+@Component
+public class AnalysisScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisScheduler.class);
+
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+    public static final String PRIORITY_HEADER = "X-Analysis-Priority";
+
+    private static final String DEFAULT_TENANT = "default";
+    private static final int MAX_TENANT_KEY_LENGTH = 64;
+    private static final long COST_UNIT_BYTES = 64 * 1024; // one unit of "work" per 64 KB of CSV
+    private static final int WAIT_SAMPLE_SIZE = 1024;
+
+    private final int workers;
+    private final int batchMaxConcurrency;
+    private final int maxQueuedPerTenant;
+    private final long batchThresholdBytes;
+    private final long minExecutionBudgetNanos;
+    private final Map<String, Integer> tenantWeights;
+    private final Map<Priority, ClassQueue> queues = new EnumMap<>(Priority.class);
+    private final DeadlineMetrics deadlineMetrics;
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor();
+
+    public AnalysisScheduler(
+            DeadlineMetrics deadlineMetrics,
+            @Value("${analysis.scheduler.workers:4}") int workers,
+            @Value("${analysis.scheduler.batch-max-concurrency:2}") int batchMaxConcurrency,
+            @Value("${analysis.scheduler.max-queued-per-tenant:20}") int maxQueuedPerTenant,
+            @Value("${analysis.scheduler.batch-threshold-bytes:1048576}") long batchThresholdBytes,
+            @Value("${analysis.scheduler.interactive.max-queue-time-ms:4000}") long interactiveMaxQueueTimeMs,
+            @Value("${analysis.scheduler.batch.max-queue-time-ms:8000}") long batchMaxQueueTimeMs,
+            @Value("${analysis.scheduler.min-execution-budget-ms:6000}") long minExecutionBudgetMs,
+            @Value("${analysis.scheduler.sweep-interval-ms:500}") long sweepIntervalMs,
+            @Value("${analysis.scheduler.tenant-weights:}") String tenantWeights
+    ) {
+        this.deadlineMetrics = deadlineMetrics;
+        this.workers = Math.max(1, workers);
+        // Keep at least one worker free for interactive jobs whenever there is more than one worker
+        this.batchMaxConcurrency = Math.max(1, Math.min(batchMaxConcurrency, this.workers - 1));
+        this.maxQueuedPerTenant = Math.max(1, maxQueuedPerTenant);
+        this.batchThresholdBytes = batchThresholdBytes;
+        this.minExecutionBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, minExecutionBudgetMs));
+        this.tenantWeights = parseTenantWeights(tenantWeights);
+        queues.put(Priority.INTERACTIVE, new ClassQueue(interactiveMaxQueueTimeMs));
+        queues.put(Priority.BATCH, new ClassQueue(batchMaxQueueTimeMs));
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.workers, r -> {
+            Thread t = new Thread(r, "analysis-worker-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleAtFixedRate(this::sweep, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+
+        logger.info("Analysis scheduler started with {} workers (batch max {}), tenant weights {}",
+                this.workers, this.batchMaxConcurrency, this.tenantWeights);
+    }
+
+    /**
+     * Resolves the fairness key from the uploader header. The gateway overwrites this header with the
+     * authenticated user, so clients cannot pick a fresh tenant per request to escape their share.
+     */
+    public static String resolveTenant(String tenantHeader) {
+        if (tenantHeader == null || tenantHeader.isBlank()) {
+            return DEFAULT_TENANT;
+        }
+        String tenant = tenantHeader.trim().toLowerCase();
+        return tenant.length() > MAX_TENANT_KEY_LENGTH ? tenant.substring(0, MAX_TENANT_KEY_LENGTH) : tenant;
+    }
+
+    /**
+     * Large uploads run as BATCH by default. The header can only lower a job's priority, never raise it.
+     */
+    public Priority resolvePriority(String priorityHeader, long sizeBytes) {
+        if (sizeBytes >= batchThresholdBytes) {
+            return Priority.BATCH;
+        }
+        return Priority.fromHeader(priorityHeader);
+    }
+
+    /**
+     * Queues a job and returns a future completed with its result, or exceptionally with a
+     * ResponseStatusException when the job is rejected (tenant queue full, 429), outwaits its class's
+     * queue limit (503) or can no longer finish within the request deadline (DeadlineExceededException, 504).
+     * Cancelling the returned future drops the job if it has not started yet.
+     *
+     * @param requestDeadlineNanos the caller's deadline as a System.nanoTime() value, or null if none
+     */
+    public CompletableFuture<String> submit(String tenant, Priority priority, long sizeBytes, Long requestDeadlineNanos,
+                                            Supplier<String> task) {
+        Job job = new Job(priority, requestDeadlineNanos, task);
+        synchronized (this) {
+            ClassQueue cq = queues.get(priority);
+            TenantQueue tq = cq.tenants.computeIfAbsent(tenant, t -> new TenantQueue(tenantWeights.getOrDefault(t, 1)));
+            if (tq.jobs.size() >= maxQueuedPerTenant) {
+                cq.rejected++;
+                logger.warn("Rejecting {} job for tenant {}: {} jobs already queued", priority, tenant, tq.jobs.size());
+                return CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Too many analyses queued for " + tenant + ", please retry later"));
+            }
+
+            // Self-clocked fair queuing: finish tag = max(virtual time, tenant's last tag) + cost / weight
+            long cost = 1 + sizeBytes / COST_UNIT_BYTES;
+            job.deadlineNanos = job.enqueuedNanos + TimeUnit.MILLISECONDS.toNanos(cq.maxQueueTimeMs);
+            // Keep time for the LLM call after queueing, but never more than half the budget the job
+            // arrived with, so a short budget still runs on an idle scheduler
+            if (requestDeadlineNanos != null) {
+                long reserve = Math.min(minExecutionBudgetNanos, Math.max(0, requestDeadlineNanos - job.enqueuedNanos) / 2);
+                if (requestDeadlineNanos - reserve - job.deadlineNanos < 0) {
+                    job.deadlineNanos = requestDeadlineNanos - reserve;
+                    job.requestBound = true;
+                }
+            }
+            job.finishTag = Math.max(cq.virtualTime, tq.lastFinishTag) + (double) cost / tq.weight;
+            tq.lastFinishTag = job.finishTag;
+            tq.jobs.add(job);
+            cq.queued++;
+            cq.submitted++;
+        }
+        dispatch();
+        return job.future;
+    }
+
+    /**
+     * Sheds expired jobs and starts as many queued jobs as there are free workers.
+     * Called on submit, on job completion and periodically by the sweeper.
+     */
+    void dispatch() {
+        List<Job> toRun = new ArrayList<>();
+        List<Job> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (ClassQueue cq : queues.values()) {
+                shedExpired(cq, now, expired);
+            }
+            ClassQueue interactive = queues.get(Priority.INTERACTIVE);
+            ClassQueue batch = queues.get(Priority.BATCH);
+            while (interactive.running + batch.running < workers) {
+                Job job = poll(interactive, now);
+                if (job == null && batch.running < batchMaxConcurrency) {
+                    job = poll(batch, now);
+                }
+                if (job == null) {
+                    break;
+                }
+                toRun.add(job);
+            }
+        }
+
+        for (Job job : expired) {
+            if (job.requestBound) {
+                job.future.completeExceptionally(new DeadlineExceededException(
+                        "Not enough of the request deadline left to run the analysis"));
+            } else {
+                job.future.completeExceptionally(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Analysis queue deadline exceeded, please retry later"));
+            }
+        }
+        for (Job job : toRun) {
+            try {
+                executor.execute(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                // Only happens during shutdown: give the slot back and fail the job
+                synchronized (this) {
+                    ClassQueue cq = queues.get(job.priority);
+                    cq.running--;
+                    cq.failed++;
+                }
+                job.future.completeExceptionally(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Analysis service is shutting down, please retry later"));
+            }
+        }
+    }
+
+    // An exception escaping a periodic task would cancel all future sweeps
+    private void sweep() {
+        try {
+            dispatch();
+        } catch (RuntimeException e) {
+            logger.error("Analysis scheduler sweep failed", e);
+        }
+    }
+
+    private void run(Job job) {
+        boolean failed = false;
+        boolean delivered = false;
+        if (job.requestDeadlineNanos != null) {
+            RequestDeadline.set(job.requestDeadlineNanos);
+        }
+        try {
+            delivered = job.future.complete(job.task.get());
+        } catch (Throwable t) {
+            failed = true;
+            delivered = job.future.completeExceptionally(t);
+        } finally {
+            RequestDeadline.clear();
+            long overrunMs = job.requestDeadlineNanos != null
+                    ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - job.requestDeadlineNanos) : 0;
+            if (!delivered || overrunMs > 0) {
+                // The caller timed out or disconnected while the LLM call was running
+                deadlineMetrics.completedAfterDeadline(overrunMs);
+            }
+            synchronized (this) {
+                ClassQueue cq = queues.get(job.priority);
+                cq.running--;
+                if (failed) {
+                    cq.failed++;
+                } else {
+                    cq.completed++;
+                }
+            }
+            dispatch();
+        }
+    }
+
+    // Picks the head job with the smallest finish tag across this class's tenants
+    private Job poll(ClassQueue cq, long now) {
+        TenantQueue best = null;
+        String bestTenant = null;
+        for (Map.Entry<String, TenantQueue> entry : cq.tenants.entrySet()) {
+            Job head = entry.getValue().jobs.peek();
+            if (head != null && (best == null || head.finishTag < best.jobs.peek().finishTag)) {
+                best = entry.getValue();
+                bestTenant = entry.getKey();
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+
+        Job job = best.jobs.poll();
+        if (best.jobs.isEmpty()) {
+            cq.tenants.remove(bestTenant);
+        }
+        cq.queued--;
+        cq.running++;
+        cq.virtualTime = Math.max(cq.virtualTime, job.finishTag);
+        cq.recordWait(TimeUnit.NANOSECONDS.toMillis(now - job.enqueuedNanos));
+        return job;
+    }
+
+    // Deadlines differ per request, so the whole queue is scanned rather than just its head
+    private void shedExpired(ClassQueue cq, long now, List<Job> expired) {
+        Iterator<Map.Entry<String, TenantQueue>> it = cq.tenants.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, TenantQueue> entry = it.next();
+            Iterator<Job> jobs = entry.getValue().jobs.iterator();
+            while (jobs.hasNext()) {
+                Job job = jobs.next();
+                if (job.future.isDone()) {
+                    // Cancelled by the caller (client disconnect or async timeout)
+                    jobs.remove();
+                    cq.queued--;
+                    cq.cancelled++;
+                    deadlineMetrics.cancelled();
+                } else if (now - job.deadlineNanos >= 0) {
+                    jobs.remove();
+                    cq.queued--;
+                    cq.shed++;
+                    // Shed jobs are the slowest ones, so they belong in the wait percentiles too
+                    cq.recordWait(TimeUnit.NANOSECONDS.toMillis(now - job.enqueuedNanos));
+                    expired.add(job);
+                    logger.warn("Shedding {} job for tenant {} after {} ms in queue", job.priority, entry.getKey(),
+                            TimeUnit.NANOSECONDS.toMillis(now - job.enqueuedNanos));
+                }
+            }
+            if (entry.getValue().jobs.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Snapshot of queue metrics per priority class.
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("workers", workers);
+        out.put("batchMaxConcurrency", batchMaxConcurrency);
+        for (Map.Entry<Priority, ClassQueue> entry : queues.entrySet()) {
+            ClassQueue cq = entry.getValue();
+            Map<String, Object> classStats = new LinkedHashMap<>();
+            classStats.put("queued", cq.queued);
+            classStats.put("running", cq.running);
+            classStats.put("activeTenants", cq.tenants.size());
+            classStats.put("submitted", cq.submitted);
+            classStats.put("completed", cq.completed);
+            classStats.put("failed", cq.failed);
+            classStats.put("shed", cq.shed);
+            classStats.put("cancelled", cq.cancelled);
+            classStats.put("rejected", cq.rejected);
+            classStats.put("maxQueueTimeMs", cq.maxQueueTimeMs);
+            classStats.put("queueWaitP50Ms", cq.waitPercentile(0.50));
+            classStats.put("queueWaitP99Ms", cq.waitPercentile(0.99));
+            classStats.put("queueWaitMaxMs", cq.maxWaitMs);
+            out.put(entry.getKey().name().toLowerCase(), classStats);
+        }
+        return out;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        executor.shutdownNow();
+        // Fail whatever is still queued so callers get an answer now rather than at their deadline
+        List<Job> drained = new ArrayList<>();
+        synchronized (this) {
+            for (ClassQueue cq : queues.values()) {
+                for (TenantQueue tq : cq.tenants.values()) {
+                    drained.addAll(tq.jobs);
+                    cq.failed += tq.jobs.size();
+                }
+                cq.tenants.clear();
+                cq.queued = 0;
+            }
+        }
+        for (Job job : drained) {
+            job.future.completeExceptionally(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Analysis service is shutting down, please retry later"));
+        }
+    }
+
+    // Format: "alice@example.edu=3,bob@example.edu=2"; tenants not listed get weight 1
+    private static Map<String, Integer> parseTenantWeights(String value) {
+        Map<String, Integer> weights = new HashMap<>();
+        if (value == null || value.isBlank()) {
+            return weights;
+        }
+        for (String pair : value.split(",")) {
+            int idx = pair.lastIndexOf('=');
+            if (idx <= 0) {
+                continue;
+            }
+            try {
+                int weight = Integer.parseInt(pair.substring(idx + 1).trim());
+                if (weight > 0) {
+                    weights.put(pair.substring(0, idx).trim().toLowerCase(), weight);
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid tenant weight: {}", pair);
+            }
+        }
+        return weights;
+    }
+
+    private static class Job {
+        final Priority priority;
+        final Long requestDeadlineNanos;
+        final Supplier<String> task;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        final long enqueuedNanos = System.nanoTime();
+        long deadlineNanos;
+        boolean requestBound; // deadlineNanos comes from the request deadline rather than the queue limit
+        double finishTag;
+
+        Job(Priority priority, Long requestDeadlineNanos, Supplier<String> task) {
+            this.priority = priority;
+            this.requestDeadlineNanos = requestDeadlineNanos;
+            this.task = task;
+        }
+    }
+
+    private static class TenantQueue {
+        final ArrayDeque<Job> jobs = new ArrayDeque<>();
+        final int weight;
+        double lastFinishTag;
+
+        TenantQueue(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static class ClassQueue {
+        final long maxQueueTimeMs;
+        final Map<String, TenantQueue> tenants = new LinkedHashMap<>();
+        double virtualTime;
+        int queued;
+        int running;
+        long submitted;
+        long completed;
+        long failed;
+        long shed;
+        long cancelled;
+        long rejected;
+
+        // Ring buffer of the most recent queue waits, used for percentiles
+        final long[] waitSamples = new long[WAIT_SAMPLE_SIZE];
+        int sampleCount;
+        long maxWaitMs;
+
+        ClassQueue(long maxQueueTimeMs) {
+            this.maxQueueTimeMs = maxQueueTimeMs;
+        }
+
+        void recordWait(long waitMs) {
+            waitSamples[sampleCount++ % WAIT_SAMPLE_SIZE] = waitMs;
+            if (sampleCount == 2 * WAIT_SAMPLE_SIZE) {
+                sampleCount = WAIT_SAMPLE_SIZE; // avoid overflow, the buffer stays full
+            }
+            maxWaitMs = Math.max(maxWaitMs, waitMs);
+        }
+
+        long waitPercentile(double p) {
+            int n = Math.min(sampleCount, WAIT_SAMPLE_SIZE);
+            if (n == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(waitSamples, n);
+            Arrays.sort(sorted);
+            return sorted[Math.max(0, (int) Math.ceil(p * n) - 1)];
+        }
+    }
+}
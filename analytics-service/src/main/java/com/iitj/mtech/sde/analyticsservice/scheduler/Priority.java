@@ -0,0 +1,18 @@
+package com.iitj.mtech.sde.analyticsservice.scheduler;
+
+/**
+ * Priority class of an analysis job.
+ * INTERACTIVE jobs (a user waiting on the dashboard) are always dispatched before BATCH jobs.
+ */
+public enum Priority {
+    INTERACTIVE,
+    BATCH;
+
+    // Unknown or missing values are treated as interactive
+    public static Priority fromHeader(String value) {
+        if (value != null && value.trim().equalsIgnoreCase("batch")) {
+            return BATCH;
+        }
+        return INTERACTIVE;
+    }
+}
@@ -1,5 +1,8 @@
 package com.iitj.mtech.sde.analyticsservice.service;
 
+import com.iitj.mtech.sde.analyticsservice.deadline.DeadlineExceededException;
+import com.iitj.mtech.sde.analyticsservice.deadline.DeadlineMetrics;
+import com.iitj.mtech.sde.analyticsservice.deadline.RequestDeadline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,7 +14,6 @@ import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.server.ResponseStatusException;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -28,6 +30,9 @@ public class AnalyticsService {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private DeadlineMetrics deadlineMetrics;
+
     // Read API key from environment variable "GEMINI_API_KEY"
     private final String llmApiKey = System.getenv("GEMINI_API_KEY");
 
@@ -36,15 +41,20 @@ public class AnalyticsService {
     @Value("${llm.api.url}")
     private String llmApiUrl;
 
-    @Retry(name = "llmApiRetry")
     @CircuitBreaker(name = "llmApi", fallbackMethod = "getAnalyticsFromLlmFallback")
     public String getAnalyticsFromLlm(String csvData) {
+        // Don't start an LLM call for a job whose deadline has already passed
+        if (RequestDeadline.isExpired()) {
+            deadlineMetrics.callSkipped();
+            throw new DeadlineExceededException("Request deadline exceeded before calling the LLM API");
+        }
+
         if (llmApiKey == null || llmApiKey.isEmpty()) {
             logger.error("API Key not found. Please set the GEMINI_API_KEY environment variable.");
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "LLM API key is not configured.");
         }
 
-        logger.info("Calling LLM API at: {}", llmApiUrl);
+        logger.info("Calling LLM API at: {} ({} ms budget left)", llmApiUrl, RequestDeadline.remainingMillis());
 
         // Construct the full API URL with the key
         String apiUrl = llmApiUrl + "?key=" + llmApiKey;
@@ -168,8 +178,16 @@ public class AnalyticsService {
 
     // Fallback when circuit is open or call fails/timeouts
     private String getAnalyticsFromLlmFallback(String csvData, Throwable t) {
+        if (RequestDeadline.isExpired()) {
+            throw new DeadlineExceededException("LLM API did not answer within the request deadline");
+        }
         logger.error("LLM API unavailable, returning fallback analytics", t);
         // Basic safe JSON to keep the UI functional
         return "{\"error\":\"LLM_UNAVAILABLE\",\"message\":\"Please try again later\",\"sentiment\":{\"positive\":0,\"negative\":0,\"neutral\":100},\"keyThemes\":[]}";
     }
+
+    // A missed deadline is reported as 504 rather than as the LLM_UNAVAILABLE payload
+    private String getAnalyticsFromLlmFallback(String csvData, DeadlineExceededException e) {
+        throw e;
+    }
 }
@@ -0,0 +1,106 @@
+package com.iitj.mtech.sde.analyticsservice.controller;
+
+import com.iitj.mtech.sde.analyticsservice.deadline.DeadlineFilter;
+import com.iitj.mtech.sde.analyticsservice.deadline.DeadlineMetrics;
+import com.iitj.mtech.sde.analyticsservice.deadline.RequestDeadline;
+import com.iitj.mtech.sde.analyticsservice.scheduler.AnalysisScheduler;
+import com.iitj.mtech.sde.analyticsservice.scheduler.Priority;
+import com.iitj.mtech.sde.analyticsservice.service.AnalyticsService;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AnalyticsControllerTest {
+
+	private final DeadlineMetrics deadlineMetrics = new DeadlineMetrics();
+	private final AnalyticsService analyticsService = mock(AnalyticsService.class);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private AnalysisScheduler scheduler;
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		// A single worker, kept busy so the analysis under test stays queued
+		scheduler = new AnalysisScheduler(deadlineMetrics, 1, 1, 20, 1048576, 4000, 8000, 0, 60000, "");
+		AnalyticsController controller = new AnalyticsController();
+		ReflectionTestUtils.setField(controller, "analyticsService", analyticsService);
+		ReflectionTestUtils.setField(controller, "analysisScheduler", scheduler);
+		ReflectionTestUtils.setField(controller, "deadlineMetrics", deadlineMetrics);
+		mockMvc = MockMvcBuilders.standaloneSetup(controller)
+				.addFilters(new DeadlineFilter(deadlineMetrics, 15000, 30000))
+				.build();
+	}
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		scheduler.shutdown();
+	}
+
+	@Test
+	void deferredResultTimeoutCancelsTheQueuedJob() throws Exception {
+		CompletableFuture<String> blocker = scheduler.submit("blocker", Priority.INTERACTIVE, 0, null, () -> {
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "released";
+		});
+
+		MvcResult result = mockMvc.perform(multipart("/analyze")
+						.file(new MockMultipartFile("file", "feedback.csv", "text/csv",
+								"rating,comment\n5,Great course\n".getBytes(StandardCharsets.UTF_8)))
+						.header(RequestDeadline.HEADER, "5000"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		// What the container does when the DeferredResult's timeout (the remaining budget) expires
+		MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+		for (AsyncListener listener : asyncContext.getListeners()) {
+			listener.onTimeout(new AsyncEvent(asyncContext));
+		}
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isGatewayTimeout());
+
+		// Once the worker frees up, the cancelled job is dropped instead of run
+		release.countDown();
+		blocker.get(5, TimeUnit.SECONDS);
+		long cancelled = 0;
+		for (int i = 0; i < 50 && cancelled == 0; i++) {
+			cancelled = (Long) interactiveStats().get("cancelled");
+			Thread.sleep(20);
+		}
+		assertEquals(1L, cancelled);
+		verify(analyticsService, never()).getAnalyticsFromLlm(anyString());
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> interactiveStats() {
+		return (Map<String, Object>) scheduler.stats().get("interactive");
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.iitj.mtech.sde.analyticsservice.deadline;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineFilterTest {
+
+	private final DeadlineMetrics deadlineMetrics = new DeadlineMetrics();
+	private final DeadlineFilter filter = new DeadlineFilter(deadlineMetrics, 15000, 30000);
+
+	@Test
+	void appliesTheForwardedBudget() throws Exception {
+		assertBudgetAbout(4750, budgetSeenFor("4750"));
+	}
+
+	@Test
+	void appliesTheDefaultWhenTheHeaderIsMissingOrInvalid() throws Exception {
+		assertBudgetAbout(15000, budgetSeenFor(null));
+		assertBudgetAbout(15000, budgetSeenFor("-"));
+	}
+
+	@Test
+	void capsTheBudgetAtTheMaximum() throws Exception {
+		assertBudgetAbout(30000, budgetSeenFor("86400000"));
+	}
+
+	@Test
+	void rejectsRequestsThatArriveWithoutBudget() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		AtomicLong calls = new AtomicLong();
+
+		filter.doFilter(request("-5"), response, (req, res) -> calls.incrementAndGet());
+
+		assertEquals(504, response.getStatus());
+		assertEquals(0, calls.get());
+		assertEquals(1L, deadlineMetrics.snapshot().get("expiredOnArrival"));
+		assertNull(RequestDeadline.current());
+	}
+
+	@Test
+	void leavesOverrunOfQueuedAnalysesToTheScheduler() throws Exception {
+		filter.doFilter(request("10"), new MockHttpServletResponse(), (req, res) -> {
+			((MockHttpServletRequest) req).setAsyncStarted(true);
+			sleepPastDeadline();
+		});
+
+		assertEquals(0L, deadlineMetrics.snapshot().get("completedAfterDeadline"));
+	}
+
+	@Test
+	void doesNotCountADeadline504AsWastedWork() throws Exception {
+		filter.doFilter(request("10"), new MockHttpServletResponse(), (req, res) -> {
+			sleepPastDeadline();
+			((MockHttpServletResponse) res).setStatus(504);
+		});
+
+		assertEquals(0L, deadlineMetrics.snapshot().get("completedAfterDeadline"));
+	}
+
+	private long budgetSeenFor(String header) throws Exception {
+		AtomicLong seen = new AtomicLong();
+		filter.doFilter(request(header), new MockHttpServletResponse(),
+				(req, res) -> seen.set(RequestDeadline.remainingMillis()));
+		assertNull(RequestDeadline.current());
+		return seen.get();
+	}
+
+	private static MockHttpServletRequest request(String budgetHeader) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/analyze");
+		if (budgetHeader != null) {
+			request.addHeader(RequestDeadline.HEADER, budgetHeader);
+		}
+		return request;
+	}
+
+	private static void assertBudgetAbout(long expectedMs, long actualMs) {
+		assertTrue(actualMs <= expectedMs && actualMs > expectedMs - 1000,
+				"expected about " + expectedMs + " ms, got " + actualMs);
+	}
+
+	private static void sleepPastDeadline() {
+		try {
+			Thread.sleep(30);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
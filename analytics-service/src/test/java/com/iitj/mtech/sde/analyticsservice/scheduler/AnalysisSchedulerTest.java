@@ -0,0 +1,215 @@
+package com.iitj.mtech.sde.analyticsservice.scheduler;
+
+import com.iitj.mtech.sde.analyticsservice.deadline.DeadlineExceededException;
+import com.iitj.mtech.sde.analyticsservice.deadline.DeadlineMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AnalysisSchedulerTest {
+
+	private final DeadlineMetrics deadlineMetrics = new DeadlineMetrics();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private AnalysisScheduler scheduler;
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		scheduler.shutdown();
+	}
+
+	@Test
+	void tenantsShareWorkersByWeight() throws Exception {
+		scheduler = newScheduler(1, 4000, 0, "a=3,b=1");
+		CompletableFuture<String> blocker = submitBlocker();
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		List<CompletableFuture<String>> jobs = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			jobs.add(scheduler.submit("a", Priority.INTERACTIVE, 0, null, record(order, "a")));
+			jobs.add(scheduler.submit("b", Priority.INTERACTIVE, 0, null, record(order, "b")));
+		}
+
+		release.countDown();
+		blocker.get(5, TimeUnit.SECONDS);
+		for (CompletableFuture<String> job : jobs) {
+			job.get(5, TimeUnit.SECONDS);
+		}
+
+		List<String> firstEight = order.subList(0, 8);
+		assertEquals(6, Collections.frequency(firstEight, "a"));
+		assertEquals(2, Collections.frequency(firstEight, "b"));
+	}
+
+	@Test
+	void interactiveJobsRunBeforeBatchJobs() throws Exception {
+		scheduler = newScheduler(1, 4000, 0, "");
+		CompletableFuture<String> blocker = submitBlocker();
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		CompletableFuture<String> batch = scheduler.submit("a", Priority.BATCH, 0, null, record(order, "batch"));
+		CompletableFuture<String> interactive = scheduler.submit("b", Priority.INTERACTIVE, 0, null, record(order, "interactive"));
+
+		release.countDown();
+		blocker.get(5, TimeUnit.SECONDS);
+		batch.get(5, TimeUnit.SECONDS);
+		interactive.get(5, TimeUnit.SECONDS);
+
+		assertEquals(List.of("interactive", "batch"), order);
+	}
+
+	@Test
+	void batchJobsLeaveAWorkerForInteractiveJobs() throws Exception {
+		scheduler = newScheduler(3, 4000, 0, "");
+		List<CompletableFuture<String>> batchJobs = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			batchJobs.add(scheduler.submit("a", Priority.BATCH, 0, null, blockUntilReleased()));
+		}
+
+		Map<String, Object> batchStats = classStats("batch");
+		assertEquals(2, batchStats.get("running"));
+		assertEquals(1, batchStats.get("queued"));
+
+		// Runs on the worker the batch jobs may not take, while they are still blocked
+		assertEquals("done", scheduler.submit("b", Priority.INTERACTIVE, 0, null, () -> "done").get(5, TimeUnit.SECONDS));
+
+		release.countDown();
+		for (CompletableFuture<String> job : batchJobs) {
+			job.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	void jobsOverTheQueueLimitAreShedWith503() throws Exception {
+		scheduler = newScheduler(1, 50, 0, "");
+		submitBlocker();
+		CompletableFuture<String> job = scheduler.submit("a", Priority.INTERACTIVE, 0, null, () -> "late");
+
+		Thread.sleep(100);
+		scheduler.dispatch();
+
+		Throwable failure = failureOf(job);
+		assertInstanceOf(ResponseStatusException.class, failure);
+		assertFalse(failure instanceof DeadlineExceededException);
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseStatusException) failure).getStatusCode());
+		assertEquals(1L, classStats("interactive").get("shed"));
+	}
+
+	@Test
+	void jobsWithoutEnoughRequestBudgetLeftAreShedWith504() throws Exception {
+		scheduler = newScheduler(1, 4000, 1000, "");
+		submitBlocker();
+		// The reserve is capped at half of the 200 ms budget, so the job may wait 100 ms
+		long requestDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+		AtomicBoolean ran = new AtomicBoolean();
+		CompletableFuture<String> job = scheduler.submit("a", Priority.INTERACTIVE, 0, requestDeadline, () -> {
+			ran.set(true);
+			return "late";
+		});
+
+		Thread.sleep(150);
+		scheduler.dispatch();
+
+		assertInstanceOf(DeadlineExceededException.class, failureOf(job));
+		assertFalse(ran.get());
+	}
+
+	@Test
+	void shortBudgetsStillRunOnAnIdleScheduler() throws Exception {
+		scheduler = newScheduler(1, 4000, 6000, "");
+		long requestDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+
+		CompletableFuture<String> job = scheduler.submit("a", Priority.INTERACTIVE, 0, requestDeadline, () -> "done");
+
+		assertEquals("done", job.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void cancelledJobsAreDroppedBeforeTheyRun() throws Exception {
+		scheduler = newScheduler(1, 4000, 0, "");
+		CompletableFuture<String> blocker = submitBlocker();
+		AtomicBoolean ran = new AtomicBoolean();
+		CompletableFuture<String> job = scheduler.submit("a", Priority.INTERACTIVE, 0, null, () -> {
+			ran.set(true);
+			return "unwanted";
+		});
+
+		job.cancel(true);
+		release.countDown();
+		blocker.get(5, TimeUnit.SECONDS);
+		scheduler.dispatch();
+
+		assertFalse(ran.get());
+		assertEquals(1L, classStats("interactive").get("cancelled"));
+		assertEquals(1L, deadlineMetrics.snapshot().get("cancelled"));
+	}
+
+	@Test
+	void shutdownFailsQueuedJobs() throws Exception {
+		scheduler = newScheduler(1, 4000, 0, "");
+		submitBlocker();
+		CompletableFuture<String> job = scheduler.submit("a", Priority.INTERACTIVE, 0, null, () -> "never");
+
+		scheduler.shutdown();
+
+		Throwable failure = failureOf(job);
+		assertInstanceOf(ResponseStatusException.class, failure);
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseStatusException) failure).getStatusCode());
+		assertEquals(0, classStats("interactive").get("queued"));
+	}
+
+	private AnalysisScheduler newScheduler(int workers, long interactiveMaxQueueTimeMs, long minExecutionBudgetMs,
+										   String tenantWeights) {
+		// Long sweep interval: the tests drive dispatch() themselves
+		return new AnalysisScheduler(deadlineMetrics, workers, 2, 20, 1048576,
+				interactiveMaxQueueTimeMs, 8000, minExecutionBudgetMs, 60000, tenantWeights);
+	}
+
+	// Occupies a worker until the test releases it
+	private CompletableFuture<String> submitBlocker() {
+		return scheduler.submit("blocker", Priority.INTERACTIVE, 0, null, blockUntilReleased());
+	}
+
+	private Supplier<String> blockUntilReleased() {
+		return () -> {
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "released";
+		};
+	}
+
+	private static Supplier<String> record(List<String> order, String label) {
+		return () -> {
+			order.add(label);
+			return label;
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> classStats(String priorityClass) {
+		return (Map<String, Object>) scheduler.stats().get(priorityClass);
+	}
+
+	private static Throwable failureOf(CompletableFuture<String> job) {
+		return assertThrows(ExecutionException.class, () -> job.get(5, TimeUnit.SECONDS)).getCause();
+	}
+
+}
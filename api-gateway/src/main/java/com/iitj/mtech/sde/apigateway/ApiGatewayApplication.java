@@ -1,10 +1,14 @@
 package com.iitj.mtech.sde.apigateway;
 
+import com.iitj.mtech.sde.apigateway.filter.DeadlineFilter;
+import com.iitj.mtech.sde.apigateway.loadbalancer.AffinityLoadBalancerConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -33,6 +37,14 @@ import java.util.Map;
  */
 @SpringBootApplication
 @EnableDiscoveryClient // Enables service discovery capabilities
+// Consistent-hash routing so repeat analyses of the same dataset reach the same replica.
+// Lower-case names cover the lb:// routes created by the discovery locator.
+@LoadBalancerClients({
+		@LoadBalancerClient(name = "DATA-SERVICE", configuration = AffinityLoadBalancerConfiguration.class),
+		@LoadBalancerClient(name = "ANALYTICS-SERVICE", configuration = AffinityLoadBalancerConfiguration.class),
+		@LoadBalancerClient(name = "data-service", configuration = AffinityLoadBalancerConfiguration.class),
+		@LoadBalancerClient(name = "analytics-service", configuration = AffinityLoadBalancerConfiguration.class)
+})
 public class ApiGatewayApplication {
 
 	public static void main(String[] args) {
@@ -116,4 +128,19 @@ public class ApiGatewayApplication {
 			return out;
 		}
 	}
+
+	@RestController
+	@RequestMapping("/gateway")
+	static class GatewayStatsController {
+		private final DeadlineFilter deadlineFilter;
+
+		GatewayStatsController(DeadlineFilter deadlineFilter) {
+			this.deadlineFilter = deadlineFilter;
+		}
+
+		@GetMapping("/deadline-stats")
+		public Map<String, Object> deadlineStats() {
+			return deadlineFilter.stats();
+		}
+	}
 }
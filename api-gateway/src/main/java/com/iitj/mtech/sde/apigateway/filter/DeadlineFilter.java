@@ -0,0 +1,98 @@
+package com.iitj.mtech.sde.apigateway.filter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sets the end-to-end request deadline for every routed request.
+ *
+ * The remaining budget is sent downstream in X-Request-Budget-Ms; each service honours it and
+ * forwards what is left. A client-supplied budget is accepted but capped. When the budget runs
+ * out, or the client disconnects, the gateway drops its own leg of the request. The services behind
+ * it do not see that: they keep working until the forwarded budget runs out, so downstream
+ * cancellation is bounded by the deadline rather than immediate.
+ */
+@Component
+public class DeadlineFilter implements GlobalFilter, Ordered {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineFilter.class);
+
+    public static final String HEADER = "X-Request-Budget-Ms";
+
+    private final long defaultBudgetMs;
+    private final long maxBudgetMs;
+
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong clientCancelled = new AtomicLong();
+
+    public DeadlineFilter(@Value("${gateway.request.deadline.default-ms:15000}") long defaultBudgetMs,
+                          @Value("${gateway.request.deadline.max-ms:30000}") long maxBudgetMs) {
+        this.defaultBudgetMs = defaultBudgetMs;
+        this.maxBudgetMs = maxBudgetMs;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long budgetMs = parseBudget(exchange.getRequest().getHeaders().getFirst(HEADER));
+        ServerWebExchange mutated = exchange.mutate()
+                .request(r -> r.headers(h -> h.set(HEADER, Long.toString(budgetMs))))
+                .build();
+        String path = exchange.getRequest().getPath().value();
+
+        return chain.filter(mutated)
+                .timeout(Duration.ofMillis(budgetMs))
+                .onErrorResume(TimeoutException.class, ex -> {
+                    timedOut.incrementAndGet();
+                    logger.warn("Request {} exceeded its {} ms deadline, answering 504", path, budgetMs);
+                    if (exchange.getResponse().isCommitted()) {
+                        return Mono.empty();
+                    }
+                    exchange.getResponse().setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+                    return exchange.getResponse().setComplete();
+                })
+                .doOnCancel(() -> {
+                    clientCancelled.incrementAndGet();
+                    logger.info("Client disconnected from {}; downstream work stops at the request deadline", path);
+                });
+    }
+
+    // Runs before the routing and load balancer filters so the header is on the proxied request
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("defaultBudgetMs", defaultBudgetMs);
+        out.put("timedOut", timedOut.get());
+        out.put("clientCancelled", clientCancelled.get());
+        return out;
+    }
+
+    private long parseBudget(String header) {
+        if (header == null || header.isBlank()) {
+            return defaultBudgetMs;
+        }
+        try {
+            return Math.max(1, Math.min(Long.parseLong(header.trim()), maxBudgetMs));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring invalid {} header: {}", HEADER, header);
+            return defaultBudgetMs;
+        }
+    }
+}
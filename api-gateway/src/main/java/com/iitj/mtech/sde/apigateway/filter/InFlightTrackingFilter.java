@@ -0,0 +1,48 @@
+package com.iitj.mtech.sde.apigateway.filter;
+
+import com.iitj.mtech.sde.apigateway.loadbalancer.InFlightRequests;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+
+/**
+ * Counts in-flight requests per chosen instance. Runs right after the load balancer filter and
+ * decrements in doFinally, so cancelled requests (client disconnects, deadline timeouts) are
+ * released as well as completed and failed ones.
+ */
+@Component
+public class InFlightTrackingFilter implements GlobalFilter, Ordered {
+
+    private final InFlightRequests inFlightRequests;
+
+    public InFlightTrackingFilter(InFlightRequests inFlightRequests) {
+        this.inFlightRequests = inFlightRequests;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Response<ServiceInstance> lbResponse = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (lbResponse == null || !lbResponse.hasServer()) {
+            return chain.filter(exchange);
+        }
+        ServiceInstance instance = lbResponse.getServer();
+        return Mono.defer(() -> {
+                    inFlightRequests.increment(instance);
+                    return chain.filter(exchange);
+                })
+                .doFinally(signal -> inFlightRequests.decrement(instance));
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+}
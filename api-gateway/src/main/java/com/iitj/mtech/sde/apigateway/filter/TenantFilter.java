@@ -0,0 +1,49 @@
+package com.iitj.mtech.sde.apigateway.filter;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+
+/**
+ * Sets X-Tenant-Id to the authenticated user so the Analytics Service scheduler can share
+ * capacity fairly between uploaders. Any client-supplied value is replaced.
+ */
+@Component
+public class TenantFilter implements GlobalFilter, Ordered {
+
+    public static final String HEADER = "X-Tenant-Id";
+    private static final String ANONYMOUS = "anonymous";
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return exchange.getPrincipal()
+                .map(TenantFilter::tenantOf)
+                .defaultIfEmpty(ANONYMOUS)
+                .flatMap(tenant -> chain.filter(exchange.mutate()
+                        .request(r -> r.headers(h -> h.set(HEADER, tenant)))
+                        .build()));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private static String tenantOf(Principal principal) {
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof OAuth2User user) {
+            String email = user.getAttribute("email");
+            if (email != null) {
+                return email;
+            }
+        }
+        return principal.getName();
+    }
+}
@@ -0,0 +1,28 @@
+package com.iitj.mtech.sde.apigateway.loadbalancer;
+
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load balancer configuration for services routed with content affinity.
+ * Intentionally not annotated with @Configuration: it is only loaded into the per-service
+ * load balancer contexts declared via @LoadBalancerClients, not the main application context.
+ */
+public class AffinityLoadBalancerConfiguration {
+
+    @Bean
+    public ConsistentHashLoadBalancer consistentHashLoadBalancer(Environment environment,
+                                                                 LoadBalancerClientFactory loadBalancerClientFactory,
+                                                                 InFlightRequests inFlightRequests) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new ConsistentHashLoadBalancer(
+                loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class),
+                serviceId,
+                inFlightRequests,
+                environment.getProperty("gateway.loadbalancer.affinity.enabled", Boolean.class, true),
+                environment.getProperty("gateway.loadbalancer.affinity.virtual-nodes", Integer.class, 160),
+                environment.getProperty("gateway.loadbalancer.affinity.load-factor", Double.class, 1.25));
+    }
+}
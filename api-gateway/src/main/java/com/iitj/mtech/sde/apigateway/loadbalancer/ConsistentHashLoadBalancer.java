@@ -0,0 +1,215 @@
+package com.iitj.mtech.sde.apigateway.loadbalancer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Consistent-hashing load balancer with bounded loads.
+ *
+ * Requests carrying a content hash (X-Content-Hash) or dataset id (X-Dataset-Id header or
+ * datasetId query parameter) are mapped onto a hash ring of the service's instances, so repeat
+ * analyses of the same data land on the replica that already holds its state. Adding or removing
+ * a replica only remaps the keys next to it on the ring. A replica is skipped while its in-flight
+ * requests exceed loadFactor times the average, which keeps a hot key from overloading one node.
+ * Requests without a key fall back to round-robin. In-flight counts come from InFlightRequests.
+ *
+ * Each instance's share of the ring can be tuned with the "affinity-weight" Eureka metadata entry.
+ *
+ * The api-gateway and data-service copies of this class are identical apart from the package;
+ * each service builds on its own, so change both together.
+ */
+public class ConsistentHashLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsistentHashLoadBalancer.class);
+
+    public static final String CONTENT_HASH_HEADER = "X-Content-Hash";
+    public static final String DATASET_ID_HEADER = "X-Dataset-Id";
+    public static final String DATASET_ID_PARAM = "datasetId";
+    public static final String WEIGHT_METADATA = "affinity-weight";
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+    private final String serviceId;
+    private final boolean enabled;
+    private final int virtualNodes;
+    private final double loadFactor;
+    private final InFlightRequests inFlightRequests;
+
+    private final AtomicInteger position = new AtomicInteger(ThreadLocalRandom.current().nextInt(1000));
+    private volatile Ring ring = new Ring(List.of(), "", new TreeMap<>());
+
+    public ConsistentHashLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+                                      String serviceId, InFlightRequests inFlightRequests,
+                                      boolean enabled, int virtualNodes, double loadFactor) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.serviceId = serviceId;
+        this.inFlightRequests = inFlightRequests;
+        this.enabled = enabled;
+        this.virtualNodes = Math.max(1, virtualNodes);
+        this.loadFactor = Math.max(1.0, loadFactor);
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider
+                .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(instances -> choose(instances, affinityKey(request)));
+    }
+
+    Response<ServiceInstance> choose(List<ServiceInstance> instances, String key) {
+        if (instances.isEmpty()) {
+            logger.warn("No servers available for service: {}", serviceId);
+            return new EmptyResponse();
+        }
+        if (!enabled || key == null || instances.size() == 1) {
+            int pos = position.incrementAndGet() & Integer.MAX_VALUE;
+            return new DefaultResponse(instances.get(pos % instances.size()));
+        }
+
+        Map<String, ServiceInstance> byId = new HashMap<>();
+        long totalInFlight = 0;
+        for (ServiceInstance instance : instances) {
+            byId.put(InFlightRequests.instanceId(instance), instance);
+            totalInFlight += inFlightRequests.get(instance);
+        }
+        // Bounded loads: no replica takes more than loadFactor x the average in-flight count
+        long capacity = (long) Math.ceil(loadFactor * (totalInFlight + 1) / instances.size());
+
+        TreeMap<Long, String> points = ringFor(instances).points();
+        long hash = hash(key);
+        Set<String> visited = new HashSet<>();
+        String primary = null;
+        for (Iterable<String> segment : List.of(points.tailMap(hash, true).values(), points.headMap(hash, false).values())) {
+            for (String id : segment) {
+                if (!visited.add(id)) {
+                    continue;
+                }
+                if (primary == null) {
+                    primary = id;
+                }
+                if (inFlightRequests.get(byId.get(id)) < capacity) {
+                    if (!id.equals(primary)) {
+                        logger.debug("Replica {} of {} is over capacity {}, routing key {} to {}",
+                                primary, serviceId, capacity, key, id);
+                    }
+                    return new DefaultResponse(byId.get(id));
+                }
+                if (visited.size() == byId.size()) {
+                    break;
+                }
+            }
+        }
+        return new DefaultResponse(byId.get(primary));
+    }
+
+    // Rebuilt only when the set of instances or their weights change
+    private Ring ringFor(List<ServiceInstance> instances) {
+        Ring current = ring;
+        // The caching instance supplier hands out the same list until the registry changes
+        if (current.instances() == instances) {
+            return current;
+        }
+        StringBuilder signature = new StringBuilder();
+        instances.stream()
+                .map(instance -> InFlightRequests.instanceId(instance) + "#" + weightOf(instance))
+                .sorted()
+                .forEach(entry -> signature.append(entry).append(','));
+        if (current.signature().equals(signature.toString())) {
+            Ring same = new Ring(instances, current.signature(), current.points());
+            ring = same;
+            return same;
+        }
+
+        TreeMap<Long, String> points = new TreeMap<>();
+        for (ServiceInstance instance : instances) {
+            String id = InFlightRequests.instanceId(instance);
+            int nodes = virtualNodes * weightOf(instance);
+            for (int i = 0; i < nodes; i++) {
+                points.put(hash(id + "-" + i), id);
+            }
+        }
+        Ring rebuilt = new Ring(instances, signature.toString(), points);
+        ring = rebuilt;
+        inFlightRequests.retainOnly(instances);
+        logger.info("Rebuilt hash ring for {} with {} instances", serviceId, instances.size());
+        return rebuilt;
+    }
+
+    private static String affinityKey(Request request) {
+        if (!(request.getContext() instanceof RequestDataContext context) || context.getClientRequest() == null) {
+            return null;
+        }
+        RequestData data = context.getClientRequest();
+        if (data.getHeaders() != null) {
+            String contentHash = data.getHeaders().getFirst(CONTENT_HASH_HEADER);
+            if (contentHash != null && !contentHash.isBlank()) {
+                return contentHash.trim();
+            }
+            String datasetId = data.getHeaders().getFirst(DATASET_ID_HEADER);
+            if (datasetId != null && !datasetId.isBlank()) {
+                return datasetId.trim();
+            }
+        }
+        if (data.getUrl() != null) {
+            String datasetId = UriComponentsBuilder.fromUri(data.getUrl()).build().getQueryParams().getFirst(DATASET_ID_PARAM);
+            if (datasetId != null && !datasetId.isBlank()) {
+                return datasetId.trim();
+            }
+        }
+        return null;
+    }
+
+    private static int weightOf(ServiceInstance instance) {
+        String weight = instance.getMetadata() != null ? instance.getMetadata().get(WEIGHT_METADATA) : null;
+        if (weight == null) {
+            return 1;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(weight.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring invalid {} metadata '{}' on instance {}", WEIGHT_METADATA, weight, InFlightRequests.instanceId(instance));
+            return 1;
+        }
+    }
+
+    // First 8 bytes of MD5, as in ketama-style rings, for an even spread of points
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xff);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    private record Ring(List<ServiceInstance> instances, String signature, TreeMap<Long, String> points) {
+    }
+}
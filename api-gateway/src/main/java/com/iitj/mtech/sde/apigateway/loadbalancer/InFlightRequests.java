@@ -0,0 +1,59 @@
+package com.iitj.mtech.sde.apigateway.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * In-flight request count per service instance, read by the consistent-hash balancer for its
+ * bounded-load check. Maintained by InFlightTrackingFilter in the gateway and by InFlightLifecycle
+ * in the Data Service; the two copies of this class are identical apart from the package.
+ */
+@Component
+public class InFlightRequests {
+
+    private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    public int get(ServiceInstance instance) {
+        AtomicInteger count = counts.get(key(instance));
+        return count != null ? count.get() : 0;
+    }
+
+    public void increment(ServiceInstance instance) {
+        counts.computeIfAbsent(key(instance), k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public void decrement(ServiceInstance instance) {
+        AtomicInteger count = counts.get(key(instance));
+        if (count != null) {
+            count.updateAndGet(c -> Math.max(0, c - 1));
+        }
+    }
+
+    /**
+     * Drops counters of instances of the same services that are no longer registered.
+     */
+    public void retainOnly(Collection<ServiceInstance> instances) {
+        Set<String> live = instances.stream().map(InFlightRequests::key).collect(Collectors.toSet());
+        Set<String> services = instances.stream().map(InFlightRequests::servicePrefix).collect(Collectors.toSet());
+        counts.keySet().removeIf(key -> !live.contains(key) && services.stream().anyMatch(key::startsWith));
+    }
+
+    static String instanceId(ServiceInstance instance) {
+        return instance.getInstanceId() != null ? instance.getInstanceId() : instance.getHost() + ":" + instance.getPort();
+    }
+
+    private static String servicePrefix(ServiceInstance instance) {
+        return String.valueOf(instance.getServiceId()).toLowerCase() + "/";
+    }
+
+    private static String key(ServiceInstance instance) {
+        return servicePrefix(instance) + instanceId(instance);
+    }
+}
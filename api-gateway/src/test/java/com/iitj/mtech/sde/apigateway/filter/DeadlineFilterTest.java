@@ -0,0 +1,61 @@
+package com.iitj.mtech.sde.apigateway.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DeadlineFilterTest {
+
+	private final DeadlineFilter filter = new DeadlineFilter(15000, 30000);
+
+	@Test
+	void sendsTheDefaultBudgetDownstream() {
+		assertEquals("15000", forwardedBudget(MockServerHttpRequest.get("/api/data/upload")));
+	}
+
+	@Test
+	void forwardsAClientBudget() {
+		assertEquals("5000", forwardedBudget(MockServerHttpRequest.get("/api/data/upload").header(DeadlineFilter.HEADER, "5000")));
+	}
+
+	@Test
+	void capsAClientBudgetAtTheMaximum() {
+		assertEquals("30000", forwardedBudget(MockServerHttpRequest.get("/api/data/upload").header(DeadlineFilter.HEADER, "600000")));
+	}
+
+	@Test
+	void ignoresAnInvalidClientBudget() {
+		assertEquals("15000", forwardedBudget(MockServerHttpRequest.get("/api/data/upload").header(DeadlineFilter.HEADER, "soon")));
+	}
+
+	@Test
+	void answers504WhenTheBudgetRunsOut() {
+		MockServerWebExchange exchange = MockServerWebExchange.from(
+				MockServerHttpRequest.get("/api/data/upload").header(DeadlineFilter.HEADER, "20"));
+		GatewayFilterChain slowChain = ex -> Mono.delay(Duration.ofSeconds(5)).then();
+
+		filter.filter(exchange, slowChain).block(Duration.ofSeconds(5));
+
+		assertEquals(HttpStatus.GATEWAY_TIMEOUT, exchange.getResponse().getStatusCode());
+		assertEquals(1L, filter.stats().get("timedOut"));
+	}
+
+	private String forwardedBudget(MockServerHttpRequest.BaseBuilder<?> request) {
+		AtomicReference<String> forwarded = new AtomicReference<>();
+		GatewayFilterChain chain = exchange -> {
+			forwarded.set(exchange.getRequest().getHeaders().getFirst(DeadlineFilter.HEADER));
+			return Mono.empty();
+		};
+		filter.filter(MockServerWebExchange.from(request), chain).block(Duration.ofSeconds(5));
+		return forwarded.get();
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.iitj.mtech.sde.apigateway.filter;
+
+import com.iitj.mtech.sde.apigateway.loadbalancer.InFlightRequests;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+
+class InFlightTrackingFilterTest {
+
+	private final ServiceInstance instance =
+			new DefaultServiceInstance("data-1", "data-service", "10.0.0.1", 8081, false);
+	private final InFlightRequests inFlightRequests = new InFlightRequests();
+	private final InFlightTrackingFilter filter = new InFlightTrackingFilter(inFlightRequests);
+
+	@Test
+	void countsTheRequestWhileItIsInFlight() {
+		AtomicInteger seen = new AtomicInteger();
+
+		filter.filter(routedExchange(), exchange -> Mono.fromRunnable(() -> seen.set(inFlightRequests.get(instance))))
+				.block(Duration.ofSeconds(5));
+
+		assertEquals(1, seen.get());
+		assertEquals(0, inFlightRequests.get(instance));
+	}
+
+	@Test
+	void releasesFailedRequests() {
+		filter.filter(routedExchange(), exchange -> Mono.error(new IllegalStateException("connection refused")))
+				.onErrorResume(e -> Mono.empty())
+				.block(Duration.ofSeconds(5));
+
+		assertEquals(0, inFlightRequests.get(instance));
+	}
+
+	@Test
+	void releasesCancelledRequests() {
+		Disposable subscription = filter.filter(routedExchange(), exchange -> Mono.never()).subscribe();
+		assertEquals(1, inFlightRequests.get(instance));
+
+		// What a client disconnect or the gateway deadline does to the downstream call
+		subscription.dispose();
+
+		assertEquals(0, inFlightRequests.get(instance));
+	}
+
+	private MockServerWebExchange routedExchange() {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/data/upload"));
+		exchange.getAttributes().put(GATEWAY_LOADBALANCER_RESPONSE_ATTR, new DefaultResponse(instance));
+		return exchange;
+	}
+
+}
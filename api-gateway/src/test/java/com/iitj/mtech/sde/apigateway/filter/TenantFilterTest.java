@@ -0,0 +1,62 @@
+package com.iitj.mtech.sde.apigateway.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TenantFilterTest {
+
+	private final TenantFilter filter = new TenantFilter();
+
+	@Test
+	void replacesAClientSuppliedTenantWithTheUsersEmail() {
+		OAuth2User user = new DefaultOAuth2User(AuthorityUtils.createAuthorityList("OAUTH2_USER"),
+				Map.of("sub", "1234", "email", "alice@example.edu"), "sub");
+		Principal principal = new OAuth2AuthenticationToken(user, user.getAuthorities(), "google");
+
+		assertEquals("alice@example.edu", forwardedTenant(principal, "mallory"));
+	}
+
+	@Test
+	void fallsBackToThePrincipalName() {
+		Principal principal = new UsernamePasswordAuthenticationToken("carol", "n/a");
+
+		assertEquals("carol", forwardedTenant(principal, "mallory"));
+	}
+
+	@Test
+	void unauthenticatedRequestsShareTheAnonymousTenant() {
+		assertEquals("anonymous", forwardedTenant(null, "mallory"));
+	}
+
+	private String forwardedTenant(Principal principal, String clientTenant) {
+		ServerWebExchange exchange = MockServerWebExchange.from(
+				MockServerHttpRequest.post("/api/data/upload").header(TenantFilter.HEADER, clientTenant));
+		if (principal != null) {
+			exchange = exchange.mutate().principal(Mono.just(principal)).build();
+		}
+		AtomicReference<String> forwarded = new AtomicReference<>();
+		GatewayFilterChain chain = ex -> {
+			forwarded.set(String.join(",", ex.getRequest().getHeaders().getOrEmpty(TenantFilter.HEADER)));
+			return Mono.empty();
+		};
+		filter.filter(exchange, chain).block(Duration.ofSeconds(5));
+		return forwarded.get();
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.iitj.mtech.sde.apigateway.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.LinkedMultiValueMap;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashLoadBalancerTest {
+
+	private static final int KEYS = 2000;
+
+	private final InFlightRequests inFlightRequests = new InFlightRequests();
+	private final ConsistentHashLoadBalancer loadBalancer =
+			new ConsistentHashLoadBalancer(null, "analytics-service", inFlightRequests, true, 160, 1.25);
+
+	@Test
+	void addingAReplicaOnlyMovesKeysToIt() {
+		Map<String, String> before = assignments(List.of(instance(1), instance(2), instance(3)));
+		Map<String, String> after = assignments(List.of(instance(1), instance(2), instance(3), instance(4)));
+
+		int moved = 0;
+		for (Map.Entry<String, String> entry : before.entrySet()) {
+			String now = after.get(entry.getKey());
+			if (!now.equals(entry.getValue())) {
+				assertEquals("analytics-4", now, "key " + entry.getKey() + " moved between existing replicas");
+				moved++;
+			}
+		}
+		// Roughly a quarter of the keys should move to the new replica
+		assertTrue(moved > KEYS / 8 && moved < KEYS / 2, "moved " + moved + " of " + KEYS + " keys");
+	}
+
+	@Test
+	void removingAReplicaOnlyMovesItsKeys() {
+		Map<String, String> before = assignments(List.of(instance(1), instance(2), instance(3), instance(4)));
+		Map<String, String> after = assignments(List.of(instance(1), instance(2), instance(4)));
+
+		for (Map.Entry<String, String> entry : before.entrySet()) {
+			if (!entry.getValue().equals("analytics-3")) {
+				assertEquals(entry.getValue(), after.get(entry.getKey()), "key " + entry.getKey() + " moved needlessly");
+			}
+		}
+	}
+
+	@Test
+	void overloadedReplicaSpillsToTheNextOne() {
+		List<ServiceInstance> instances = List.of(instance(1), instance(2), instance(3));
+		ServiceInstance primary = loadBalancer.choose(instances, "dataset-42").getServer();
+
+		// Two in flight against a capacity of ceil(1.25 * 3 / 3) = 2
+		inFlightRequests.increment(primary);
+		inFlightRequests.increment(primary);
+
+		ServiceInstance chosen = loadBalancer.choose(instances, "dataset-42").getServer();
+		assertNotEquals(primary.getInstanceId(), chosen.getInstanceId());
+	}
+
+	@Test
+	void keyStaysOnItsReplicaWhileLoadIsBalanced() {
+		List<ServiceInstance> instances = List.of(instance(1), instance(2), instance(3));
+		ServiceInstance primary = loadBalancer.choose(instances, "dataset-42").getServer();
+
+		for (ServiceInstance instance : instances) {
+			inFlightRequests.increment(instance);
+			inFlightRequests.increment(instance);
+		}
+
+		assertEquals(primary.getInstanceId(), loadBalancer.choose(instances, "dataset-42").getServer().getInstanceId());
+	}
+
+	@Test
+	void affinityWeightMetadataScalesAReplicasShare() {
+		ServiceInstance heavy = new DefaultServiceInstance("analytics-1", "analytics-service", "10.0.0.1", 8082, false,
+				Map.of(ConsistentHashLoadBalancer.WEIGHT_METADATA, "3"));
+		Map<String, String> owners = assignments(List.of(heavy, instance(2), instance(3)));
+
+		// Weight 3 against two replicas of weight 1: about 3/5 of the keys
+		long share = owners.values().stream().filter("analytics-1"::equals).count();
+		assertTrue(share > KEYS / 2 && share < KEYS * 7 / 10, "weighted replica owns " + share + " of " + KEYS + " keys");
+	}
+
+	@Test
+	void routesOnTheContentHashHeader() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(ConsistentHashLoadBalancer.CONTENT_HASH_HEADER, "dataset-42");
+		assertAlwaysRoutedTo(expectedOwner("dataset-42"), request("/analyze", headers));
+	}
+
+	@Test
+	void routesOnTheDatasetIdHeader() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(ConsistentHashLoadBalancer.DATASET_ID_HEADER, "dataset-42");
+		assertAlwaysRoutedTo(expectedOwner("dataset-42"), request("/analyze", headers));
+	}
+
+	@Test
+	void routesOnTheDatasetIdQueryParameter() {
+		assertAlwaysRoutedTo(expectedOwner("dataset-42"), request("/analyze?datasetId=dataset-42", new HttpHeaders()));
+	}
+
+	@Test
+	void requestsWithoutAKeyAreSpreadRoundRobin() {
+		List<ServiceInstance> instances = List.of(instance(1), instance(2), instance(3));
+		ConsistentHashLoadBalancer balancer = balancerFor(instances);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 6; i++) {
+			String id = balancer.choose(request("/analyze", new HttpHeaders())).block(Duration.ofSeconds(5)).getServer().getInstanceId();
+			counts.merge(id, 1, Integer::sum);
+		}
+
+		assertEquals(Map.of("analytics-1", 2, "analytics-2", 2, "analytics-3", 2), counts);
+	}
+
+	private String expectedOwner(String key) {
+		return loadBalancer.choose(List.of(instance(1), instance(2), instance(3)), key).getServer().getInstanceId();
+	}
+
+	// Round-robin would cycle through the replicas, so six identical answers mean the key was used
+	private void assertAlwaysRoutedTo(String expected, Request<RequestDataContext> request) {
+		ConsistentHashLoadBalancer balancer = balancerFor(List.of(instance(1), instance(2), instance(3)));
+		for (int i = 0; i < 6; i++) {
+			assertEquals(expected, balancer.choose(request).block(Duration.ofSeconds(5)).getServer().getInstanceId());
+		}
+	}
+
+	private ConsistentHashLoadBalancer balancerFor(List<ServiceInstance> instances) {
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton("serviceInstanceListSupplier", new ServiceInstanceListSupplier() {
+			@Override
+			public String getServiceId() {
+				return "analytics-service";
+			}
+
+			@Override
+			public Flux<List<ServiceInstance>> get() {
+				return Flux.just(instances);
+			}
+		});
+		return new ConsistentHashLoadBalancer(beanFactory.getBeanProvider(ServiceInstanceListSupplier.class),
+				"analytics-service", new InFlightRequests(), true, 160, 1.25);
+	}
+
+	private static Request<RequestDataContext> request(String path, HttpHeaders headers) {
+		RequestData data = new RequestData(HttpMethod.POST, URI.create("http://analytics-service" + path), headers,
+				new LinkedMultiValueMap<>(), new HashMap<>());
+		return new DefaultRequest<>(new RequestDataContext(data));
+	}
+
+	private Map<String, String> assignments(List<ServiceInstance> instances) {
+		Map<String, String> owners = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			String key = "content-" + i;
+			owners.put(key, loadBalancer.choose(instances, key).getServer().getInstanceId());
+		}
+		return owners;
+	}
+
+	private static ServiceInstance instance(int n) {
+		return new DefaultServiceInstance("analytics-" + n, "analytics-service", "10.0.0." + n, 8082, false);
+	}
+
+}
@@ -1,21 +1,28 @@
 package com.iitj.mtech.sde.dataservice;
 
+import com.iitj.mtech.sde.dataservice.deadline.DeadlineAwareRequestFactory;
+import com.iitj.mtech.sde.dataservice.deadline.DeadlinePropagationInterceptor;
+import com.iitj.mtech.sde.dataservice.loadbalancer.AffinityLoadBalancerConfiguration;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 import org.springframework.context.annotation.Bean;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
-import java.time.Duration;
-
 /**
  * Main Application Class for Data Service
  */
 @SpringBootApplication
 @EnableDiscoveryClient
+// Same content-affinity balancing as the gateway, so repeat analyses reach the analytics replica holding their state
+@LoadBalancerClients({
+        @LoadBalancerClient(name = "ANALYTICS-SERVICE", configuration = AffinityLoadBalancerConfiguration.class),
+        @LoadBalancerClient(name = "analytics-service", configuration = AffinityLoadBalancerConfiguration.class)
+})
 public class DataServiceApplication {
 
     public static void main(String[] args) {
@@ -26,11 +33,12 @@ public class DataServiceApplication {
     @LoadBalanced
     public RestTemplate restTemplate(
             @Value("${http.client.connect-timeout:3000}") int connectTimeout,
-            @Value("${http.client.read-timeout:8000}") int readTimeout
+            @Value("${http.client.read-timeout:8000}") int readTimeout,
+            @Value("${request.deadline.margin-ms:250}") long deadlineMarginMs
     ) {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(Duration.ofMillis(connectTimeout));
-        factory.setReadTimeout(Duration.ofMillis(readTimeout));
-        return new RestTemplate(factory);
+        // Timeouts are capped by the remaining request budget, which is also forwarded downstream
+        RestTemplate restTemplate = new RestTemplate(new DeadlineAwareRequestFactory(connectTimeout, readTimeout));
+        restTemplate.getInterceptors().add(new DeadlinePropagationInterceptor(deadlineMarginMs));
+        return restTemplate;
     }
 }
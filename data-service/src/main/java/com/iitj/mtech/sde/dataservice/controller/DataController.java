@@ -1,5 +1,6 @@
 package com.iitj.mtech.sde.dataservice.controller;
 
+import com.iitj.mtech.sde.dataservice.deadline.DeadlineMetrics;
 import com.iitj.mtech.sde.dataservice.service.FileStorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +12,7 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 
 /**
  * Controller to handle file uploads
@@ -24,31 +26,48 @@ public class DataController {
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private DeadlineMetrics deadlineMetrics;
+
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<String> uploadFile(
+            @RequestParam("file") MultipartFile file,
+            @RequestHeader HttpHeaders requestHeaders) {
         logger.info("Received file upload request for: {}", file.getOriginalFilename());
 
+        Path storedFilePath = null;
         try {
             // 1. Validate and store the file
-            Path storedFilePath = fileStorageService.storeFile(file);
+            storedFilePath = fileStorageService.storeFile(file);
             logger.info("File stored temporarily at: {}", storedFilePath);
 
             // 2. Asynchronously call Analytics Service
-            String analysisResult = fileStorageService.forwardToAnalytics(storedFilePath);
+            String analysisResult = fileStorageService.forwardToAnalytics(storedFilePath, requestHeaders);
             logger.info("Received analysis result from Analytics Service.");
 
-            // 3. Immediately delete the file after getting the result
-            fileStorageService.deleteFile(storedFilePath);
-
-            // 4. Return the result from Analytics Service to the UI
+            // 3. Return the result from Analytics Service to the UI
             return ResponseEntity.ok(analysisResult);
 
+        } catch (ResponseStatusException ex) {
+            // Backpressure (429/503) and deadline (504) answers are passed through to the client as-is
+            logger.warn("Upload not analysed: {} {}", ex.getStatusCode(), ex.getReason());
+            throw ex;
         } catch (IOException ex) {
             logger.error("File storage error", ex);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not store file.", ex);
         } catch (Exception ex) {
             logger.error("Error during file processing or analytics call", ex);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error processing file", ex);
+        } finally {
+            // Delete the file as soon as the analysis is over, whether it succeeded, was rejected or timed out
+            if (storedFilePath != null) {
+                fileStorageService.deleteFile(storedFilePath);
+            }
         }
     }
+
+    @GetMapping("/deadline-stats")
+    public Map<String, Object> deadlineStats() {
+        return deadlineMetrics.snapshot();
+    }
 }
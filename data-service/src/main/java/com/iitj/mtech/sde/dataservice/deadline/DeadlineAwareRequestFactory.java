@@ -0,0 +1,30 @@
+package com.iitj.mtech.sde.dataservice.deadline;
+
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * Request factory whose connect/read timeouts never exceed the current request's remaining budget,
+ * so a downstream call cannot outlive the caller that is waiting for it.
+ */
+public class DeadlineAwareRequestFactory extends SimpleClientHttpRequestFactory {
+
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+
+    public DeadlineAwareRequestFactory(int connectTimeoutMs, int readTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    @Override
+    protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+        super.prepareConnection(connection, httpMethod);
+        // 0 would mean "no timeout" for HttpURLConnection, so never go below 1 ms
+        long remaining = Math.max(1, RequestDeadline.remainingMillis());
+        connection.setConnectTimeout((int) Math.min(connectTimeoutMs, remaining));
+        connection.setReadTimeout((int) Math.min(readTimeoutMs, remaining));
+    }
+}
@@ -0,0 +1,14 @@
+package com.iitj.mtech.sde.dataservice.deadline;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Raised when the upload's budget is spent before analytics answered; answered with 504.
+ */
+public class DeadlineExceededException extends ResponseStatusException {
+
+    public DeadlineExceededException(String reason) {
+        super(HttpStatus.GATEWAY_TIMEOUT, reason);
+    }
+}
@@ -0,0 +1,76 @@
+package com.iitj.mtech.sde.dataservice.deadline;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the remaining budget from X-Request-Budget-Ms (or applies the default) and exposes it
+ * to the request thread via RequestDeadline. Requests that arrive with no budget left are
+ * answered with 504 without doing any work.
+ */
+@Component
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineFilter.class);
+
+    private final DeadlineMetrics deadlineMetrics;
+    private final long defaultBudgetMs;
+    private final long maxBudgetMs;
+
+    public DeadlineFilter(DeadlineMetrics deadlineMetrics,
+                          @Value("${request.deadline.default-ms:15000}") long defaultBudgetMs,
+                          @Value("${request.deadline.max-ms:30000}") long maxBudgetMs) {
+        this.deadlineMetrics = deadlineMetrics;
+        this.defaultBudgetMs = defaultBudgetMs;
+        this.maxBudgetMs = maxBudgetMs;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long budgetMs = parseBudget(request.getHeader(RequestDeadline.HEADER));
+        if (budgetMs <= 0) {
+            logger.warn("Rejecting {} {}: request deadline already exceeded", request.getMethod(), request.getRequestURI());
+            deadlineMetrics.expiredOnArrival();
+            response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), "Request deadline exceeded");
+            return;
+        }
+
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        RequestDeadline.set(deadlineNanos);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+            long overrunMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - deadlineNanos);
+            // Only a real answer delivered late is waste; a 504 just means the deadline was enforced
+            if (overrunMs > 0 && response.getStatus() != HttpStatus.GATEWAY_TIMEOUT.value()) {
+                logger.warn("{} {} finished {} ms after its deadline", request.getMethod(), request.getRequestURI(), overrunMs);
+                deadlineMetrics.completedAfterDeadline(overrunMs);
+            }
+        }
+    }
+
+    private long parseBudget(String header) {
+        if (header == null || header.isBlank()) {
+            return defaultBudgetMs;
+        }
+        try {
+            return Math.min(Long.parseLong(header.trim()), maxBudgetMs);
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring invalid {} header: {}", RequestDeadline.HEADER, header);
+            return defaultBudgetMs;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.iitj.mtech.sde.dataservice.deadline;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * Forwards the remaining budget (minus a small margin for the return trip) to downstream services.
+ */
+public class DeadlinePropagationInterceptor implements ClientHttpRequestInterceptor {
+
+    private final long marginMs;
+
+    public DeadlinePropagationInterceptor(long marginMs) {
+        this.marginMs = marginMs;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        if (RequestDeadline.current() != null) {
+            long remaining = Math.max(0, RequestDeadline.remainingMillis() - marginMs);
+            request.getHeaders().set(RequestDeadline.HEADER, Long.toString(remaining));
+        }
+        return execution.execute(request, body);
+    }
+}
@@ -0,0 +1,43 @@
+package com.iitj.mtech.sde.dataservice.deadline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the deadline of the request being processed on the current thread.
+ * The deadline travels between services as a remaining budget in milliseconds (X-Request-Budget-Ms),
+ * so clock skew between hosts does not matter.
+ */
+public final class RequestDeadline {
+
+    public static final String HEADER = "X-Request-Budget-Ms";
+
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void set(long deadlineNanos) {
+        DEADLINE_NANOS.set(deadlineNanos);
+    }
+
+    public static void clear() {
+        DEADLINE_NANOS.remove();
+    }
+
+    // Deadline as a System.nanoTime() value, or null when the request carries none
+    public static Long current() {
+        return DEADLINE_NANOS.get();
+    }
+
+    public static long remainingMillis() {
+        Long deadline = DEADLINE_NANOS.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    public static boolean isExpired() {
+        return remainingMillis() <= 0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.iitj.mtech.sde.dataservice.loadbalancer;
+
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Per-client configuration for the Analytics Service load balancer, registered via @LoadBalancerClients
+ * (deliberately not a @Configuration, so it stays out of the main context). InFlightRequests comes from
+ * the main context, so both spellings of the client name share one set of counts.
+ */
+public class AffinityLoadBalancerConfiguration {
+
+    @Bean
+    public InFlightLifecycle inFlightLifecycle(InFlightRequests inFlightRequests) {
+        return new InFlightLifecycle(inFlightRequests);
+    }
+
+    @Bean
+    public ConsistentHashLoadBalancer consistentHashLoadBalancer(Environment environment,
+                                                                 LoadBalancerClientFactory loadBalancerClientFactory,
+                                                                 InFlightRequests inFlightRequests) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new ConsistentHashLoadBalancer(
+                loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class),
+                serviceId,
+                inFlightRequests,
+                environment.getProperty("analytics.loadbalancer.affinity.enabled", Boolean.class, true),
+                environment.getProperty("analytics.loadbalancer.affinity.virtual-nodes", Integer.class, 160),
+                environment.getProperty("analytics.loadbalancer.affinity.load-factor", Double.class, 1.25));
+    }
+}
@@ -0,0 +1,39 @@
+package com.iitj.mtech.sde.dataservice.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+
+/**
+ * Keeps InFlightRequests up to date. The blocking load balancer client calls onComplete in all
+ * cases (success, failure, exception), so counts cannot leak here.
+ */
+public class InFlightLifecycle implements LoadBalancerLifecycle<Object, Object, ServiceInstance> {
+
+    private final InFlightRequests inFlightRequests;
+
+    public InFlightLifecycle(InFlightRequests inFlightRequests) {
+        this.inFlightRequests = inFlightRequests;
+    }
+
+    @Override
+    public void onStart(Request<Object> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<Object> request, Response<ServiceInstance> lbResponse) {
+        if (lbResponse.hasServer()) {
+            inFlightRequests.increment(lbResponse.getServer());
+        }
+    }
+
+    @Override
+    public void onComplete(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (lbResponse != null && lbResponse.hasServer()) {
+            inFlightRequests.decrement(lbResponse.getServer());
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.iitj.mtech.sde.dataservice.service;
 
+import com.iitj.mtech.sde.dataservice.deadline.DeadlineExceededException;
+import com.iitj.mtech.sde.dataservice.deadline.DeadlineMetrics;
+import com.iitj.mtech.sde.dataservice.deadline.RequestDeadline;
+import com.iitj.mtech.sde.dataservice.loadbalancer.ConsistentHashLoadBalancer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,17 +14,23 @@ import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -33,6 +43,13 @@ import java.util.concurrent.TimeUnit;
 public class FileStorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileStorageService.class);
+
+    // Scheduling hints understood by the Analytics Service's fair scheduler; the tenant is set by the gateway
+    public static final String TENANT_HEADER = "X-Tenant-Id";
+    public static final String PRIORITY_HEADER = "X-Analysis-Priority";
+    private static final List<String> FORWARDED_HEADERS = List.of(TENANT_HEADER, PRIORITY_HEADER,
+            ConsistentHashLoadBalancer.CONTENT_HASH_HEADER, ConsistentHashLoadBalancer.DATASET_ID_HEADER);
+
     private final Path fileStorageLocation;
     private final long maxFileSize = 10 * 1024 * 1024; // 10 MB
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
@@ -40,6 +57,9 @@ public class FileStorageService {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private DeadlineMetrics deadlineMetrics;
+
     @Value("${analytics.service.url}")
     private String analyticsServiceUrl; // e.g., http://ANALYTICS-SERVICE/analyze
 
@@ -82,10 +102,15 @@ public class FileStorageService {
         return targetLocation;
     }
 
-    @Retry(name = "analyticsServiceRetry")
     @CircuitBreaker(name = "analyticsService", fallbackMethod = "forwardToAnalyticsFallback")
-    public String forwardToAnalytics(Path filePath) throws IOException {
-        logger.info("Forwarding file to Analytics Service: {}", filePath.getFileName());
+    public String forwardToAnalytics(Path filePath, HttpHeaders requestHeaders) throws IOException {
+        // Nothing left of the budget, so don't start the analytics call
+        if (RequestDeadline.isExpired()) {
+            deadlineMetrics.callSkipped();
+            throw new DeadlineExceededException("Request deadline exceeded before calling Analytics Service");
+        }
+        logger.info("Forwarding file to Analytics Service: {} ({} ms budget left)", filePath.getFileName(),
+                RequestDeadline.remainingMillis());
 
         // Create a FileSystemResource from the saved file
         Resource resource = new FileSystemResource(filePath.toFile());
@@ -97,16 +122,45 @@ public class FileStorageService {
         // Set headers
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        for (String name : FORWARDED_HEADERS) {
+            String value = requestHeaders.getFirst(name);
+            if (value != null && !value.isBlank()) {
+                headers.set(name, value);
+            }
+        }
+        // Routing key for the analytics load balancer: the same file always goes to the same replica
+        if (!headers.containsKey(ConsistentHashLoadBalancer.CONTENT_HASH_HEADER)
+                && !headers.containsKey(ConsistentHashLoadBalancer.DATASET_ID_HEADER)) {
+            headers.set(ConsistentHashLoadBalancer.CONTENT_HASH_HEADER, contentHash(filePath));
+        }
 
         // Create the HTTP entity
         HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
 
         // Call the Analytics Service using its Eureka name
-        ResponseEntity<String> response = restTemplate.postForEntity(
-                analyticsServiceUrl,
-                requestEntity,
-                String.class
-        );
+        ResponseEntity<String> response;
+        try {
+            response = restTemplate.postForEntity(
+                    analyticsServiceUrl,
+                    requestEntity,
+                    String.class
+            );
+        } catch (HttpStatusCodeException e) {
+            if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS || e.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) {
+                // Scheduler backpressure, not an outage: hand it to the client instead of tripping the breaker
+                throw new ResponseStatusException(e.getStatusCode(), "Analytics Service is busy, please retry later", e);
+            }
+            if (e.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT) {
+                throw new DeadlineExceededException("Analytics Service could not finish within the request deadline");
+            }
+            throw e;
+        } catch (ResourceAccessException e) {
+            // Read timeouts are capped to the remaining budget, so a timeout here is our deadline, not a sick replica
+            if (RequestDeadline.isExpired()) {
+                throw new DeadlineExceededException("Analytics Service did not answer within the request deadline");
+            }
+            throw e;
+        }
 
         if (response.getStatusCode() == HttpStatus.OK) {
             return response.getBody();
@@ -117,12 +171,29 @@ public class FileStorageService {
     }
 
     // Fallback when circuit is open or call fails/timeouts
-    private String forwardToAnalyticsFallback(Path filePath, Throwable t) {
+    private String forwardToAnalyticsFallback(Path filePath, HttpHeaders requestHeaders, Throwable t) {
+        if (RequestDeadline.isExpired()) {
+            throw new DeadlineExceededException("Analytics Service did not answer within the request deadline");
+        }
         logger.error("Analytics Service unavailable, triggering fallback for file: {}", filePath != null ? filePath.getFileName() : "<null>", t);
         // Return a graceful, minimally useful JSON payload
         return "{\"error\":\"ANALYTICS_UNAVAILABLE\",\"message\":\"Please try again later\",\"sentiment\":{\"positive\":0,\"negative\":0,\"neutral\":0},\"keyThemes\":[]}";
     }
 
+    // Status answers (backpressure, deadline) are propagated as-is rather than replaced by the fallback payload
+    private String forwardToAnalyticsFallback(Path filePath, HttpHeaders requestHeaders, ResponseStatusException e) {
+        throw e;
+    }
+
+    private static String contentHash(Path filePath) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(Files.readAllBytes(filePath)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     public void deleteFile(Path filePath) {
         try {
             Files.deleteIfExists(filePath);
@@ -0,0 +1,99 @@
+package com.iitj.mtech.sde.dataservice.deadline;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineFilterTest {
+
+	private final DeadlineMetrics deadlineMetrics = new DeadlineMetrics();
+	private final DeadlineFilter filter = new DeadlineFilter(deadlineMetrics, 15000, 30000);
+
+	@Test
+	void appliesTheDefaultBudgetWithoutAHeader() throws Exception {
+		assertBudgetAbout(15000, budgetSeenFor(null));
+	}
+
+	@Test
+	void usesTheBudgetFromTheHeader() throws Exception {
+		assertBudgetAbout(5000, budgetSeenFor("5000"));
+	}
+
+	@Test
+	void capsTheBudgetAtTheMaximum() throws Exception {
+		assertBudgetAbout(30000, budgetSeenFor("600000"));
+	}
+
+	@Test
+	void fallsBackToTheDefaultForAnInvalidHeader() throws Exception {
+		assertBudgetAbout(15000, budgetSeenFor("soon"));
+	}
+
+	@Test
+	void rejectsRequestsWithNoBudgetLeft() throws Exception {
+		MockHttpServletRequest request = request("0");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		AtomicLong calls = new AtomicLong();
+
+		filter.doFilter(request, response, (req, res) -> calls.incrementAndGet());
+
+		assertEquals(504, response.getStatus());
+		assertEquals(0, calls.get());
+		assertEquals(1L, deadlineMetrics.snapshot().get("expiredOnArrival"));
+	}
+
+	@Test
+	void clearsTheDeadlineAfterTheRequest() throws Exception {
+		filter.doFilter(request("5000"), new MockHttpServletResponse(), (req, res) -> { });
+
+		assertNull(RequestDeadline.current());
+	}
+
+	@Test
+	void countsLateAnswersButNotDeadline504s() throws Exception {
+		filter.doFilter(request("10"), new MockHttpServletResponse(), (req, res) -> {
+			sleepPastDeadline();
+			((MockHttpServletResponse) res).setStatus(504);
+		});
+		assertEquals(0L, deadlineMetrics.snapshot().get("completedAfterDeadline"));
+
+		filter.doFilter(request("10"), new MockHttpServletResponse(), (req, res) -> sleepPastDeadline());
+		assertEquals(1L, deadlineMetrics.snapshot().get("completedAfterDeadline"));
+	}
+
+	private long budgetSeenFor(String header) throws Exception {
+		AtomicLong seen = new AtomicLong();
+		FilterChain chain = (req, res) -> seen.set(RequestDeadline.remainingMillis());
+		filter.doFilter(request(header), new MockHttpServletResponse(), chain);
+		return seen.get();
+	}
+
+	private static MockHttpServletRequest request(String budgetHeader) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/upload");
+		if (budgetHeader != null) {
+			request.addHeader(RequestDeadline.HEADER, budgetHeader);
+		}
+		return request;
+	}
+
+	private static void assertBudgetAbout(long expectedMs, long actualMs) {
+		assertTrue(actualMs <= expectedMs && actualMs > expectedMs - 1000,
+				"expected about " + expectedMs + " ms, got " + actualMs);
+	}
+
+	private static void sleepPastDeadline() {
+		try {
+			Thread.sleep(30);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.iitj.mtech.sde.dataservice.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.LinkedMultiValueMap;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ConsistentHashLoadBalancerTest {
+
+	private final List<ServiceInstance> instances = List.of(instance(1), instance(2), instance(3));
+	private final InFlightRequests inFlightRequests = new InFlightRequests();
+	private final ConsistentHashLoadBalancer loadBalancer = balancer();
+
+	@Test
+	void sameUploadAlwaysReachesTheSameReplica() {
+		String first = choose("3f79bb7b435b05321651daefd374cd21");
+
+		for (int i = 0; i < 6; i++) {
+			assertEquals(first, choose("3f79bb7b435b05321651daefd374cd21"));
+		}
+	}
+
+	@Test
+	void callsCountedByTheLifecycleMoveKeysOffABusyReplica() {
+		String primaryId = choose("3f79bb7b435b05321651daefd374cd21");
+		ServiceInstance primary = instances.stream()
+				.filter(instance -> instance.getInstanceId().equals(primaryId))
+				.findFirst()
+				.orElseThrow();
+		InFlightLifecycle lifecycle = new InFlightLifecycle(inFlightRequests);
+
+		// Two calls in flight against a capacity of ceil(1.25 * 3 / 3) = 2
+		lifecycle.onStartRequest(new DefaultRequest<>(), new DefaultResponse(primary));
+		lifecycle.onStartRequest(new DefaultRequest<>(), new DefaultResponse(primary));
+
+		assertNotEquals(primaryId, choose("3f79bb7b435b05321651daefd374cd21"));
+	}
+
+	private String choose(String contentHash) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(ConsistentHashLoadBalancer.CONTENT_HASH_HEADER, contentHash);
+		RequestData data = new RequestData(HttpMethod.POST, URI.create("http://ANALYTICS-SERVICE/analyze"), headers,
+				new LinkedMultiValueMap<>(), new HashMap<>());
+		Request<RequestDataContext> request = new DefaultRequest<>(new RequestDataContext(data));
+		return loadBalancer.choose(request).block(Duration.ofSeconds(5)).getServer().getInstanceId();
+	}
+
+	private ConsistentHashLoadBalancer balancer() {
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton("serviceInstanceListSupplier", new ServiceInstanceListSupplier() {
+			@Override
+			public String getServiceId() {
+				return "ANALYTICS-SERVICE";
+			}
+
+			@Override
+			public Flux<List<ServiceInstance>> get() {
+				return Flux.just(instances);
+			}
+		});
+		return new ConsistentHashLoadBalancer(beanFactory.getBeanProvider(ServiceInstanceListSupplier.class),
+				"ANALYTICS-SERVICE", inFlightRequests, true, 160, 1.25);
+	}
+
+	private static ServiceInstance instance(int n) {
+		return new DefaultServiceInstance("analytics-" + n, "ANALYTICS-SERVICE", "10.0.0." + n, 8082, false);
+	}
+
+}
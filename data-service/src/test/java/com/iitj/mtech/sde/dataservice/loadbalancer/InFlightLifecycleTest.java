@@ -0,0 +1,53 @@
+package com.iitj.mtech.sde.dataservice.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InFlightLifecycleTest {
+
+	private final ServiceInstance instance =
+			new DefaultServiceInstance("analytics-1", "ANALYTICS-SERVICE", "10.0.0.1", 8082, false);
+	private final InFlightRequests inFlightRequests = new InFlightRequests();
+	private final InFlightLifecycle lifecycle = new InFlightLifecycle(inFlightRequests);
+	private final Request<Object> request = new DefaultRequest<>();
+	private final Response<ServiceInstance> lbResponse = new DefaultResponse(instance);
+
+	@Test
+	void countsACallUntilItSucceeds() {
+		lifecycle.onStartRequest(request, lbResponse);
+		assertEquals(1, inFlightRequests.get(instance));
+
+		lifecycle.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, request, lbResponse));
+		assertEquals(0, inFlightRequests.get(instance));
+	}
+
+	@Test
+	void releasesFailedCalls() {
+		lifecycle.onStartRequest(request, lbResponse);
+
+		lifecycle.onComplete(new CompletionContext<>(CompletionContext.Status.FAILED,
+				new IllegalStateException("read timed out"), request, lbResponse));
+
+		assertEquals(0, inFlightRequests.get(instance));
+	}
+
+	@Test
+	void ignoresCallsWithoutAChosenInstance() {
+		Response<ServiceInstance> empty = new EmptyResponse();
+
+		lifecycle.onStartRequest(request, empty);
+		lifecycle.onComplete(new CompletionContext<>(CompletionContext.Status.DISCARD, request, empty));
+
+		assertEquals(0, inFlightRequests.get(instance));
+	}
+
+}
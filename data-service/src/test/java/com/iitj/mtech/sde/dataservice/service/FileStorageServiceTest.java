@@ -0,0 +1,130 @@
+package com.iitj.mtech.sde.dataservice.service;
+
+import com.iitj.mtech.sde.dataservice.deadline.DeadlineExceededException;
+import com.iitj.mtech.sde.dataservice.deadline.RequestDeadline;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Full context, so forwardToAnalytics runs through the real circuit breaker aspect
+@SpringBootTest(properties = "eureka.client.enabled=false")
+class FileStorageServiceTest {
+
+	@Autowired
+	private FileStorageService fileStorageService;
+
+	@Autowired
+	private CircuitBreakerRegistry circuitBreakerRegistry;
+
+	@MockitoBean
+	private RestTemplate restTemplate;
+
+	@TempDir
+	Path tempDir;
+
+	private Path upload;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		circuitBreakerRegistry.circuitBreaker("analyticsService").reset();
+		upload = Files.writeString(tempDir.resolve("feedback.csv"), "rating,comment\n5,Great course\n");
+	}
+
+	@AfterEach
+	void tearDown() {
+		RequestDeadline.clear();
+	}
+
+	@Test
+	void tooManyRequestsIsPassedThroughAfterOneCall() {
+		whenAnalyticsAnswers(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS));
+
+		ResponseStatusException e = assertThrows(ResponseStatusException.class, this::forward);
+
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatusCode());
+		assertEquals("Analytics Service is busy, please retry later", e.getReason());
+		assertSingleCallNotCountedByTheBreaker();
+	}
+
+	@Test
+	void serviceUnavailableIsPassedThroughAfterOneCall() {
+		whenAnalyticsAnswers(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+
+		ResponseStatusException e = assertThrows(ResponseStatusException.class, this::forward);
+
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+		assertSingleCallNotCountedByTheBreaker();
+	}
+
+	@Test
+	void gatewayTimeoutBecomesDeadlineExceeded() {
+		whenAnalyticsAnswers(new HttpServerErrorException(HttpStatus.GATEWAY_TIMEOUT));
+
+		assertThrows(DeadlineExceededException.class, this::forward);
+		assertSingleCallNotCountedByTheBreaker();
+	}
+
+	@Test
+	void timeoutAfterTheDeadlineBecomesDeadlineExceeded() throws Exception {
+		RequestDeadline.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50));
+		when(restTemplate.postForEntity(anyString(), any(), eq(String.class))).thenAnswer(invocation -> {
+			Thread.sleep(100);
+			throw new ResourceAccessException("Read timed out");
+		});
+
+		assertThrows(DeadlineExceededException.class, this::forward);
+		assertSingleCallNotCountedByTheBreaker();
+	}
+
+	@Test
+	void otherFailuresStillUseTheFallback() throws Exception {
+		whenAnalyticsAnswers(new ResourceAccessException("Connection refused"));
+
+		String result = forward();
+
+		assertTrue(result.contains("ANALYTICS_UNAVAILABLE"));
+		assertEquals(1, circuitBreakerRegistry.circuitBreaker("analyticsService").getMetrics().getNumberOfFailedCalls());
+	}
+
+	private void whenAnalyticsAnswers(RuntimeException failure) {
+		when(restTemplate.postForEntity(anyString(), any(), eq(String.class))).thenThrow(failure);
+	}
+
+	private String forward() throws Exception {
+		return fileStorageService.forwardToAnalytics(upload, new HttpHeaders());
+	}
+
+	private void assertSingleCallNotCountedByTheBreaker() {
+		verify(restTemplate, times(1)).postForEntity(anyString(), any(), eq(String.class));
+		CircuitBreaker.Metrics metrics = circuitBreakerRegistry.circuitBreaker("analyticsService").getMetrics();
+		assertEquals(0, metrics.getNumberOfFailedCalls());
+	}
+
+}